@@ -1,6 +1,7 @@
 package com.example.springaidemo.config;
 
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,8 +9,10 @@ import org.springframework.context.annotation.Configuration;
 public class ChatMemoryConfig {
 
     @Bean
-    public ChatMemory chatMemory() {
-        // 文件存储，保存到 chat 目录
-        return new FileChatMemory("chat");
+    public ChatMemory chatMemory(@Value("${chat.search.rebuild-on-startup:true}") boolean rebuildIndexOnStartup) {
+        // 文件存储，保存到 chat 目录；会话索引在后台预热，不阻塞启动
+        FileChatMemory chatMemory = new FileChatMemory("chat", rebuildIndexOnStartup);
+        chatMemory.warmUp();
+        return chatMemory;
     }
 }
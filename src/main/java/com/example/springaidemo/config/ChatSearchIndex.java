@@ -0,0 +1,385 @@
+package com.example.springaidemo.config;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 聊天记录的内存倒排索引，由 {@link FileChatMemory} 在写入时增量维护。
+ * 中日韩文字同时索引单字和二元组（bigram），英文和数字按单词切分，查询采用 AND 语义、BM25 打分。
+ * 删除采用标记删除，已删除文档超过存活文档数时整体压缩。
+ * 索引不保存消息原文，摘要和删除时需要的原文通过 {@link ContentLoader} 按会话读取。
+ */
+public class ChatSearchIndex {
+
+    private static final String SEARCH_START = "<!--SEARCH_START-->";
+    private static final String SEARCH_END = "<!--SEARCH_END-->";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_RADIUS = 30;
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private final ContentLoader loader;
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private List<Doc> docs = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final Map<String, List<Integer>> sessionDocs = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+    private int liveDocs;
+    private int deletedDocs;
+
+    public ChatSearchIndex(ContentLoader loader) {
+        this.loader = loader;
+    }
+
+    // 追加一条消息，position 为该消息在会话中的下标
+    public void add(String sessionId, int position, String role, String content) {
+        String text = stripSearchBlock(content);
+        List<String> tokens = tokenize(text, false);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokens) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            int docId = docs.size();
+            docs.add(new Doc(sessionId, position, role, tokens.size()));
+            sessionDocs.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(docId);
+            freqs.forEach((token, tf) -> postings.computeIfAbsent(token, k -> new PostingList()).add(docId, tf));
+            totalLength += tokens.size();
+            liveDocs++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 删除会话的全部索引：标记删除，倒排表中的条目在查询时跳过。
+    // 需要在会话文件删除之前调用，原文用于扣减各词的文档频率，在加写锁之前读取
+    public void remove(String sessionId) {
+        lock.readLock().lock();
+        try {
+            if (!sessionDocs.containsKey(sessionId)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> contents = loadContents(sessionId);
+        lock.writeLock().lock();
+        try {
+            List<Integer> ids = sessionDocs.remove(sessionId);
+            if (ids == null) {
+                return;
+            }
+            for (int docId : ids) {
+                Doc doc = docs.get(docId);
+                String text = doc.position() < contents.size() ? stripSearchBlock(contents.get(doc.position())) : "";
+                for (String term : new HashSet<>(tokenize(text, false))) {
+                    // 原文与建索引时不一致的词跳过，压缩时会重新计算
+                    PostingList list = postings.get(term);
+                    if (list != null && list.live > 0 && list.freq(docId) > 0) {
+                        list.live--;
+                    }
+                }
+                deleted.set(docId);
+                docs.set(docId, null);
+                totalLength -= doc.length();
+                liveDocs--;
+                deletedDocs++;
+            }
+            if (deletedDocs >= COMPACT_MIN_DELETED && deletedDocs > liveDocs) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 清理标记删除的文档，重新分配连续的文档 ID（调用方持有写锁）
+    private void compact() {
+        int[] remap = new int[docs.size()];
+        List<Doc> kept = new ArrayList<>(liveDocs);
+        for (int docId = 0; docId < docs.size(); docId++) {
+            if (deleted.get(docId)) {
+                remap[docId] = -1;
+            } else {
+                remap[docId] = kept.size();
+                kept.add(docs.get(docId));
+            }
+        }
+        postings.values().removeIf(list -> list.compact(remap) == 0);
+        sessionDocs.values().forEach(ids -> ids.replaceAll(docId -> remap[docId]));
+        docs = kept;
+        deleted.clear();
+        deletedDocs = 0;
+    }
+
+    public SearchPage search(String query, int page, int size) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query, true)));
+        if (terms.isEmpty() || page < 0 || size <= 0) {
+            return new SearchPage(0, page, size, List.of());
+        }
+        int total = 0;
+        List<SearchHit> ranked = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    return new SearchPage(0, page, size, List.of());
+                }
+                lists.add(list);
+            }
+            // 从最短的倒排表开始求交集
+            lists.sort(Comparator.comparingInt(PostingList::size));
+
+            double avgLength = liveDocs == 0 ? 1 : (double) totalLength / liveDocs;
+            double[] idf = new double[lists.size()];
+            for (int i = 0; i < lists.size(); i++) {
+                int df = lists.get(i).live;
+                idf[i] = Math.log(1 + (Math.max(0, liveDocs - df) + 0.5) / (df + 0.5));
+            }
+
+            int limit = (int) Math.min(((long) page + 1) * size, Integer.MAX_VALUE);
+            PriorityQueue<ScoredDoc> top = new PriorityQueue<>(Comparator.comparingDouble(ScoredDoc::score));
+            PostingList shortest = lists.get(0);
+            candidates:
+            for (int i = 0; i < shortest.size(); i++) {
+                int docId = shortest.docs[i];
+                if (deleted.get(docId)) {
+                    continue;
+                }
+                double norm = K1 * (1 - B + B * docs.get(docId).length() / avgLength);
+                double score = 0;
+                for (int t = 0; t < lists.size(); t++) {
+                    int tf = t == 0 ? shortest.freqAt(i) : lists.get(t).freq(docId);
+                    if (tf == 0) {
+                        continue candidates;
+                    }
+                    score += idf[t] * tf * (K1 + 1) / (tf + norm);
+                }
+                total++;
+                if (top.size() < limit) {
+                    top.add(new ScoredDoc(docId, score));
+                } else if (!top.isEmpty() && top.peek().score() < score) {
+                    top.poll();
+                    top.add(new ScoredDoc(docId, score));
+                }
+            }
+
+            List<ScoredDoc> sorted = new ArrayList<>(top);
+            sorted.sort(Comparator.comparingDouble(ScoredDoc::score).reversed()
+                .thenComparingInt(ScoredDoc::docId));
+            for (long i = (long) page * size; i < sorted.size(); i++) {
+                ScoredDoc scored = sorted.get((int) i);
+                Doc doc = docs.get(scored.docId());
+                ranked.add(new SearchHit(doc.sessionId(), doc.position(), doc.role(), scored.score(), null));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 只为当前页读取原文生成摘要，同一会话只读取一次
+        Map<String, List<String>> contents = new HashMap<>();
+        List<SearchHit> hits = new ArrayList<>(ranked.size());
+        for (SearchHit hit : ranked) {
+            List<String> session = contents.computeIfAbsent(hit.sessionId(), this::loadContents);
+            String text = hit.position() < session.size() ? stripSearchBlock(session.get(hit.position())) : "";
+            hits.add(new SearchHit(hit.sessionId(), hit.position(), hit.role(), hit.score(), snippet(text, terms)));
+        }
+        return new SearchPage(total, page, size, hits);
+    }
+
+    private List<String> loadContents(String sessionId) {
+        List<String> contents = loader.load(sessionId);
+        return contents != null ? contents : List.of();
+    }
+
+    // 切分规则：连续的中日韩字符生成二元组，索引时额外保留单字以支持单字查询；连续的字母数字转小写作为一个词
+    static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        int cjkStart = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                if (cjkStart < 0) {
+                    cjkStart = i;
+                }
+            } else {
+                if (cjkStart >= 0) {
+                    addCjkTokens(text, cjkStart, i, tokens, !query);
+                    cjkStart = -1;
+                }
+                if (Character.isLetterOrDigit(cp)) {
+                    word.appendCodePoint(Character.toLowerCase(cp));
+                } else {
+                    flushWord(word, tokens);
+                }
+            }
+            i += Character.charCount(cp);
+        }
+        flushWord(word, tokens);
+        if (cjkStart >= 0) {
+            addCjkTokens(text, cjkStart, text.length(), tokens, !query);
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void addCjkTokens(String text, int start, int end, List<String> tokens, boolean unigrams) {
+        int second = text.offsetByCodePoints(start, 1);
+        if (second >= end) {
+            tokens.add(text.substring(start, end));
+            return;
+        }
+        while (second < end) {
+            int third = text.offsetByCodePoints(second, 1);
+            if (unigrams) {
+                tokens.add(text.substring(start, second));
+            }
+            tokens.add(text.substring(start, third));
+            start = second;
+            second = third;
+        }
+        if (unigrams) {
+            tokens.add(text.substring(start, end));
+        }
+    }
+
+    // 联网搜索的回复里带有搜索结果 JSON，不参与索引
+    private static String stripSearchBlock(String content) {
+        if (content == null) {
+            return "";
+        }
+        int start = content.indexOf(SEARCH_START);
+        int end = content.indexOf(SEARCH_END);
+        if (start < 0 || end < start) {
+            return content;
+        }
+        return (content.substring(0, start) + content.substring(end + SEARCH_END.length())).trim();
+    }
+
+    // 直接在原文上做忽略大小写的匹配，保证下标与原文一致
+    private static String snippet(String content, List<String> terms) {
+        int hit = -1;
+        for (String term : terms) {
+            int idx = indexOfIgnoreCase(content, term);
+            if (idx >= 0 && (hit < 0 || idx < hit)) {
+                hit = idx;
+            }
+        }
+        int to = Math.min(content.length(), Math.max(hit, 0) + SNIPPET_RADIUS * 2);
+        int from = Math.min(Math.max(0, hit - SNIPPET_RADIUS), to);
+        if (from > 0 && Character.isLowSurrogate(content.charAt(from))) {
+            from--;
+        }
+        if (to < content.length() && Character.isLowSurrogate(content.charAt(to))) {
+            to++;
+        }
+        return (from > 0 ? "..." : "") + content.substring(from, to).replace('\n', ' ')
+            + (to < content.length() ? "..." : "");
+    }
+
+    private static int indexOfIgnoreCase(String content, String term) {
+        for (int i = 0; i + term.length() <= content.length(); i++) {
+            if (content.regionMatches(true, i, term, 0, term.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 按会话读取全部消息的原文，列表下标与 add 时的 position 一致
+    @FunctionalInterface
+    public interface ContentLoader {
+        List<String> load(String sessionId);
+    }
+
+    // position 是消息在整个会话中的下标（从 0 开始），不受历史接口只返回最近 100 条的影响
+    public record SearchHit(String sessionId, int position, String role, double score, String snippet) {}
+
+    public record SearchPage(int total, int page, int size, List<SearchHit> hits) {}
+
+    private record Doc(String sessionId, int position, String role, int length) {}
+
+    private record ScoredDoc(int docId, double score) {}
+
+    // 文档 ID 单调递增写入，因此 docs 数组天然有序，可直接二分查找
+    private static class PostingList {
+        private int[] docs = new int[4];
+        // 词频按字节保存并封顶 255，BM25 在高词频时已经饱和，对打分几乎没有影响
+        private byte[] freqs = new byte[4];
+        private int size;
+        // 未被删除的文档数，即文档频率 df
+        private int live;
+
+        void add(int docId, int tf) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = docId;
+            freqs[size] = (byte) Math.min(tf, 255);
+            size++;
+            live++;
+        }
+
+        // 按 remap 重写文档 ID 并丢弃已删除条目，返回剩余条目数
+        int compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int docId = remap[docs[i]];
+                if (docId >= 0) {
+                    docs[kept] = docId;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            live = kept;
+            if (size < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(4, size));
+                freqs = Arrays.copyOf(freqs, Math.max(4, size));
+            }
+            return size;
+        }
+
+        int freq(int docId) {
+            int idx = Arrays.binarySearch(docs, 0, size, docId);
+            return idx >= 0 ? freqAt(idx) : 0;
+        }
+
+        int freqAt(int i) {
+            return freqs[i] & 0xFF;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -1,47 +1,287 @@
 package com.example.springaidemo.config;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.*;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
-public class FileChatMemory implements ChatMemory {
+public class FileChatMemory implements ChatMemory, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileChatMemory.class);
+    private static final int LOCK_STRIPES = 64;
+    private static final long SESSIONS_FLUSH_DELAY_MS = 1000;
+
+    // 会话ID直接作为文件名，只允许字母数字开头的短横线/下划线组合，避免路径穿越和覆盖 _titles.json
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,127}");
 
     private final Path chatDir;
     private final ObjectMapper objectMapper;
     private final Map<String, List<Message>> cache = new ConcurrentHashMap<>();
     private final Map<String, String> titleCache = new ConcurrentHashMap<>();
     private final Path titlesFile;
+    // 会话列表索引的持久化文件，启动时读取它即可得到会话列表，不必逐个解析会话文件
+    private final Path sessionsFile;
+    private final ChatSearchIndex searchIndex;
+    // 关闭后启动时不从历史会话重建全文索引，只有启动后写入的消息可被搜索
+    private final boolean rebuildIndexOnStartup;
+    // 会话列表索引：会话ID -> 默认标题和最后修改时间，不包含消息内容
+    private final Map<String, SessionMeta> sessionIndex = new ConcurrentHashMap<>();
+    // 全文索引重建尚未处理的会话，这些会话的新消息由重建统一从文件读取后索引
+    private final Set<String> pendingIndex = ConcurrentHashMap.newKeySet();
+    // 会话列表加载完成前被删除的会话，加载时不能再把它们加回列表
+    private final Set<String> removedDuringWarmUp = ConcurrentHashMap.newKeySet();
+    // 按会话分段加锁，保证同一会话的写入、删除和索引重建互斥
+    private final Object[] sessionLocks = new Object[LOCK_STRIPES];
+    private final ScheduledExecutorService warmUpExecutor = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("chat-memory-warmup").daemon().factory());
+    private final AtomicBoolean sessionsFlushScheduled = new AtomicBoolean();
+    private volatile boolean titlesLoaded;
+    private volatile boolean sessionsLoaded;
+    // 全文索引重建完成后，写入直接更新索引；在此之前只把会话标记为待重建
+    private volatile boolean indexLive;
+    private volatile CompletableFuture<Void> sessionsReady;
+    private volatile CompletableFuture<Void> searchReady;
 
     public FileChatMemory(String chatDirPath) {
+        this(chatDirPath, true);
+    }
+
+    // 构造时只创建目录，会话文件的读取放到 warmUp() 中
+    public FileChatMemory(String chatDirPath, boolean rebuildIndexOnStartup) {
         this.chatDir = Paths.get(chatDirPath);
+        this.rebuildIndexOnStartup = rebuildIndexOnStartup;
+        this.indexLive = !rebuildIndexOnStartup;
+        this.searchIndex = new ChatSearchIndex(this::loadContents);
         this.titlesFile = chatDir.resolve("_titles.json");
+        this.sessionsFile = chatDir.resolve("_sessions.json");
         this.objectMapper = new ObjectMapper();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            sessionLocks[i] = new Object();
+        }
         try {
             Files.createDirectories(chatDir);
-            loadTitles();
         } catch (IOException e) {
             throw new RuntimeException("无法创建聊天目录: " + chatDir, e);
         }
     }
 
+    // 在后台加载会话列表索引，完成后再重建全文搜索索引；任一步失败时，下次调用会重新执行失败的步骤
+    public CompletableFuture<Void> warmUp() {
+        CompletableFuture<Void> ready = searchReady;
+        if (ready == null || ready.isCompletedExceptionally()) {
+            synchronized (this) {
+                if (sessionsReady == null || sessionsReady.isCompletedExceptionally()) {
+                    sessionsReady = CompletableFuture.runAsync(this::loadSessionIndex, warmUpExecutor)
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                log.error("加载会话列表失败，将在下次访问时重试: {}", chatDir, e);
+                            }
+                        });
+                    searchReady = startRebuild();
+                } else if (searchReady.isCompletedExceptionally()) {
+                    searchReady = startRebuild();
+                }
+                ready = searchReady;
+            }
+        }
+        return ready;
+    }
+
+    private CompletableFuture<Void> startRebuild() {
+        return sessionsReady.thenRunAsync(this::rebuildIndex, warmUpExecutor)
+            .whenComplete((v, e) -> {
+                if (e != null && !sessionsReady.isCompletedExceptionally()) {
+                    log.error("重建搜索索引失败，将在下次访问时重试: {}", chatDir, e);
+                }
+            });
+    }
+
+    // 只有获取会话列表需要等会话列表索引加载完成
+    private void awaitSessions() {
+        warmUp();
+        sessionsReady.join();
+    }
+
+    // 只有搜索需要等全文索引重建完成
+    private void awaitSearch() {
+        warmUp().join();
+    }
+
+    private Object lockFor(String conversationId) {
+        return sessionLocks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)];
+    }
+
+    // 优先使用 _sessions.json 中保存的会话列表，只有不在其中的会话文件才需要解析
+    private void loadSessionIndex() {
+        loadTitles();
+        Map<String, SessionMeta> saved = readSavedSessions();
+        try (var stream = Files.list(chatDir)) {
+            stream.map(path -> path.getFileName().toString())
+                .filter(filename -> filename.endsWith(".json"))
+                .map(filename -> filename.substring(0, filename.length() - 5))
+                .filter(sessionId -> SESSION_ID.matcher(sessionId).matches())
+                .forEach(sessionId -> {
+                    SessionMeta meta = saved.get(sessionId);
+                    if (meta == null) {
+                        meta = readSessionMeta(sessionId);
+                    }
+                    if (meta == null) {
+                        return;
+                    }
+                    synchronized (lockFor(sessionId)) {
+                        if (!removedDuringWarmUp.contains(sessionId)) {
+                            // 加载期间写入过的会话已有更新的信息，不覆盖
+                            sessionIndex.putIfAbsent(sessionId, meta);
+                            if (rebuildIndexOnStartup) {
+                                pendingIndex.add(sessionId);
+                            }
+                        }
+                    }
+                });
+        } catch (IOException e) {
+            throw new RuntimeException("无法读取聊天目录: " + chatDir, e);
+        }
+        sessionsLoaded = true;
+        removedDuringWarmUp.clear();
+        scheduleSessionsFlush();
+    }
+
+    private Map<String, SessionMeta> readSavedSessions() {
+        if (!Files.exists(sessionsFile)) {
+            return Map.of();
+        }
+        try {
+            Map<String, SessionMeta> saved = objectMapper.readValue(sessionsFile.toFile(), new TypeReference<>() {});
+            return saved != null ? saved : Map.of();
+        } catch (IOException | RuntimeException e) {
+            log.warn("会话列表文件损坏，将重新解析会话文件: {}", sessionsFile, e);
+            return Map.of();
+        }
+    }
+
+    private SessionMeta readSessionMeta(String sessionId) {
+        Path path = chatDir.resolve(sessionId + ".json");
+        try {
+            long timestamp = Files.getLastModifiedTime(path).toMillis();
+            return new SessionMeta(readFirstUserTitle(path), timestamp);
+        } catch (IOException | RuntimeException e) {
+            log.warn("跳过无法读取的会话文件: {}", path, e);
+            return null;
+        }
+    }
+
+    // 流式读取会话文件，读到第一条用户消息即停止
+    private String readFirstUserTitle(Path file) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                MessageData data = objectMapper.readValue(parser, MessageData.class);
+                if (data != null && "USER".equals(data.type())) {
+                    return toTitle(data.content());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("会话文件格式错误，无法提取标题: {}", file, e);
+        }
+        return null;
+    }
+
+    private static String toTitle(String content) {
+        if (content == null) {
+            return null;
+        }
+        // 如果是联网搜索的消息，提取真正的用户问题
+        if (content.contains("用户问题：")) {
+            int idx = content.lastIndexOf("用户问题：");
+            content = content.substring(idx + 5).trim();
+        }
+        return content.length() > 30 ? content.substring(0, 30) + "..." : content;
+    }
+
+    // _titles.json 只有一个文件，修改标题前按需读取，不必等会话列表加载
     private void loadTitles() {
-        if (Files.exists(titlesFile)) {
-            try {
-                Map<String, String> titles = objectMapper.readValue(titlesFile.toFile(), new TypeReference<>() {});
-                titleCache.putAll(titles);
-            } catch (IOException e) {
-                // ignore
+        if (titlesLoaded) {
+            return;
+        }
+        synchronized (titleCache) {
+            if (!titlesLoaded && Files.exists(titlesFile)) {
+                try {
+                    Map<String, String> titles = objectMapper.readValue(titlesFile.toFile(), new TypeReference<>() {});
+                    titles.forEach(titleCache::putIfAbsent);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            titlesLoaded = true;
+        }
+    }
+
+    // 启动时根据会话列表索引重建全文搜索索引，已被删除抢先处理的会话会被跳过；
+    // 重建期间写入的会话会重新加入待重建集合，直到集合为空才切换为直接更新索引
+    private void rebuildIndex() {
+        while (true) {
+            for (String sessionId : List.copyOf(pendingIndex)) {
+                synchronized (lockFor(sessionId)) {
+                    if (pendingIndex.remove(sessionId)) {
+                        try {
+                            List<Message> cached = cache.get(sessionId);
+                            indexMessages(sessionId, 0, cached != null ? cached : loadFromFile(sessionId));
+                        } catch (RuntimeException e) {
+                            log.warn("跳过无法建立索引的会话: {}", sessionId, e);
+                        }
+                    }
+                }
             }
+            synchronized (pendingIndex) {
+                if (pendingIndex.isEmpty()) {
+                    indexLive = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void indexMessages(String sessionId, int offset, List<Message> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            searchIndex.add(sessionId, offset + i, message.getMessageType().name(), message.getContent());
+        }
+    }
+
+    // 全文索引只保存词项，摘要需要的原文从缓存或会话文件读取，不放入缓存
+    private List<String> loadContents(String sessionId) {
+        synchronized (lockFor(sessionId)) {
+            List<Message> cached = cache.get(sessionId);
+            return (cached != null ? cached : loadFromFile(sessionId)).stream()
+                .map(Message::getContent)
+                .toList();
         }
     }
 
-    private void saveTitles() {
+    public ChatSearchIndex.SearchPage search(String query, int page, int size) {
+        awaitSearch();
+        return searchIndex.search(query, page, size);
+    }
+
+    void saveTitles() {
         try {
             objectMapper.writerWithDefaultPrettyPrinter().writeValue(titlesFile.toFile(), titleCache);
         } catch (IOException e) {
@@ -49,20 +289,99 @@ public class FileChatMemory implements ChatMemory {
         }
     }
 
+    // 会话列表变化后延迟合并写入 _sessions.json，避免每次写消息都重写整个列表
+    private void scheduleSessionsFlush() {
+        if (sessionsFlushScheduled.compareAndSet(false, true)) {
+            try {
+                warmUpExecutor.schedule(() -> {
+                    sessionsFlushScheduled.set(false);
+                    saveSessions();
+                }, SESSIONS_FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                sessionsFlushScheduled.set(false);
+            }
+        }
+    }
+
+    // 先写临时文件再替换，进程中途退出也不会留下写了一半的会话列表
+    private synchronized void saveSessions() {
+        if (!sessionsLoaded) {
+            return;
+        }
+        Path tmp = chatDir.resolve("_sessions.json.tmp");
+        try {
+            objectMapper.writeValue(tmp.toFile(), new HashMap<>(sessionIndex));
+            Files.move(tmp, sessionsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存会话列表失败: {}", sessionsFile, e);
+        }
+    }
+
+    // 停止后台预热并把尚未写入的会话列表落盘
+    @Override
+    public void close() {
+        warmUpExecutor.shutdownNow();
+        saveSessions();
+    }
+
     public void updateTitle(String sessionId, String title) {
-        titleCache.put(sessionId, title);
+        updateTitles(Collections.singletonMap(sessionId, title));
+    }
+
+    // 批量修改标题，只重写一次 _titles.json
+    public void updateTitles(Map<String, String> titles) {
+        if (titles == null) {
+            throw new IllegalArgumentException("标题列表不能为空");
+        }
+        titles.forEach((sessionId, title) -> {
+            checkSessionId(sessionId);
+            if (title == null) {
+                throw new IllegalArgumentException("会话标题不能为空: " + sessionId);
+            }
+        });
+        if (titles.isEmpty()) {
+            return;
+        }
+        loadTitles();
+        titleCache.putAll(titles);
         saveTitles();
     }
 
     public String getTitle(String sessionId) {
+        loadTitles();
         return titleCache.get(sessionId);
     }
 
+    // 写入不等待预热：只读写当前会话的文件，全文索引未就绪时把会话交给重建处理
     @Override
     public void add(String conversationId, List<Message> messages) {
-        List<Message> existing = cache.computeIfAbsent(conversationId, this::loadFromFile);
-        existing.addAll(messages);
-        saveToFile(conversationId, existing);
+        warmUp();
+        synchronized (lockFor(conversationId)) {
+            List<Message> existing = cache.computeIfAbsent(conversationId, this::loadFromFile);
+            int offset = existing.size();
+            existing.addAll(messages);
+            saveToFile(conversationId, existing);
+            boolean deferred;
+            synchronized (pendingIndex) {
+                deferred = !indexLive;
+                if (deferred) {
+                    pendingIndex.add(conversationId);
+                }
+            }
+            if (!deferred) {
+                indexMessages(conversationId, offset, messages);
+            }
+            removedDuringWarmUp.remove(conversationId);
+            sessionIndex.compute(conversationId, (id, meta) -> {
+                String title = meta != null && meta.title() != null ? meta.title() : existing.stream()
+                    .filter(m -> m.getMessageType() == MessageType.USER)
+                    .findFirst()
+                    .map(m -> toTitle(m.getContent()))
+                    .orElse(null);
+                return new SessionMeta(title, System.currentTimeMillis());
+            });
+        }
+        scheduleSessionsFlush();
     }
 
     @Override
@@ -74,57 +393,93 @@ public class FileChatMemory implements ChatMemory {
         return new ArrayList<>(messages.subList(messages.size() - lastN, messages.size()));
     }
 
+    // 从会话中第 from 条消息开始读取最多 limit 条，from 与搜索结果中的 position 对应
+    public List<Message> getRange(String conversationId, int from, int limit) {
+        if (from < 0 || limit < 0) {
+            throw new IllegalArgumentException("from 和 limit 不能小于 0");
+        }
+        List<Message> messages = cache.computeIfAbsent(conversationId, this::loadFromFile);
+        synchronized (lockFor(conversationId)) {
+            int start = Math.min(from, messages.size());
+            int end = (int) Math.min((long) start + limit, messages.size());
+            return new ArrayList<>(messages.subList(start, end));
+        }
+    }
+
+    // 批量读取多个会话的最近 lastN 条消息；不存在的会话不出现在结果中，
+    // 未缓存的会话直接读文件且不放入缓存，避免一次批量请求把大量会话留在内存里
+    public Map<String, List<Message>> getAll(Collection<String> conversationIds, int lastN) {
+        checkSessionIds(conversationIds);
+        Map<String, List<Message>> result = new LinkedHashMap<>();
+        for (String conversationId : conversationIds) {
+            synchronized (lockFor(conversationId)) {
+                List<Message> messages = cache.get(conversationId);
+                // get() 对不存在的会话也会缓存空列表，因此空列表同样以文件是否存在为准
+                if (messages == null || messages.isEmpty()) {
+                    if (!Files.exists(getFilePath(conversationId))) {
+                        continue;
+                    }
+                    if (messages == null) {
+                        messages = loadFromFile(conversationId);
+                    }
+                }
+                int from = lastN <= 0 ? 0 : Math.max(0, messages.size() - lastN);
+                result.put(conversationId, new ArrayList<>(messages.subList(from, messages.size())));
+            }
+        }
+        return result;
+    }
+
     @Override
     public void clear(String conversationId) {
-        cache.remove(conversationId);
-        titleCache.remove(conversationId);
-        saveTitles();
-        try {
-            Files.deleteIfExists(getFilePath(conversationId));
-        } catch (IOException e) {
-            // ignore
+        clearAll(List.of(conversationId));
+    }
+
+    // 批量删除会话，_titles.json 最多重写一次
+    public void clearAll(Collection<String> conversationIds) {
+        checkSessionIds(conversationIds);
+        warmUp();
+        loadTitles();
+        boolean titlesChanged = false;
+        for (String conversationId : conversationIds) {
+            synchronized (lockFor(conversationId)) {
+                pendingIndex.remove(conversationId);
+                // 删除索引需要读取原文，必须在清除缓存和删除文件之前
+                searchIndex.remove(conversationId);
+                cache.remove(conversationId);
+                sessionIndex.remove(conversationId);
+                if (!sessionsLoaded) {
+                    removedDuringWarmUp.add(conversationId);
+                }
+                titlesChanged |= titleCache.remove(conversationId) != null;
+                try {
+                    Files.deleteIfExists(getFilePath(conversationId));
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
         }
+        if (titlesChanged) {
+            saveTitles();
+        }
+        scheduleSessionsFlush();
     }
 
-    // 获取所有会话ID和基本信息
+    // 获取所有会话ID和基本信息，直接读取会话列表索引，不再解析会话文件
     public List<SessionInfo> getAllSessions() {
-        List<SessionInfo> sessions = new ArrayList<>();
-        try (var stream = Files.list(chatDir)) {
-            stream.filter(p -> p.toString().endsWith(".json") && !p.getFileName().toString().equals("_titles.json"))
-                .forEach(path -> {
-                    String filename = path.getFileName().toString();
-                    String sessionId = filename.substring(0, filename.length() - 5);
-                    try {
-                        long timestamp = Files.getLastModifiedTime(path).toMillis();
-                        // 优先使用自定义标题，否则获取第一条用户消息作为标题
-                        String customTitle = titleCache.get(sessionId);
-                        String title;
-                        if (customTitle != null && !customTitle.isBlank()) {
-                            title = customTitle;
-                        } else {
-                            List<Message> msgs = cache.computeIfAbsent(sessionId, this::loadFromFile);
-                            title = msgs.stream()
-                                .filter(m -> m.getMessageType().name().equals("USER"))
-                                .findFirst()
-                                .map(m -> {
-                                    String content = m.getContent();
-                                    // 如果是联网搜索的消息，提取真正的用户问题
-                                    if (content.contains("用户问题：")) {
-                                        int idx = content.lastIndexOf("用户问题：");
-                                        content = content.substring(idx + 5).trim();
-                                    }
-                                    return content.length() > 30 ? content.substring(0, 30) + "..." : content;
-                                })
-                                .orElse("新对话");
-                        }
-                        sessions.add(new SessionInfo(sessionId, title, timestamp));
-                    } catch (IOException e) {
-                        // ignore
-                    }
-                });
-        } catch (IOException e) {
-            // ignore
-        }
+        awaitSessions();
+        List<SessionInfo> sessions = new ArrayList<>(sessionIndex.size());
+        sessionIndex.forEach((sessionId, meta) -> {
+            // 优先使用自定义标题，否则使用第一条用户消息作为标题
+            String customTitle = titleCache.get(sessionId);
+            String title;
+            if (customTitle != null && !customTitle.isBlank()) {
+                title = customTitle;
+            } else {
+                title = meta.title() != null ? meta.title() : "新对话";
+            }
+            sessions.add(new SessionInfo(sessionId, title, meta.timestamp()));
+        });
         // 按时间倒序
         sessions.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
         return sessions;
@@ -132,8 +487,29 @@ public class FileChatMemory implements ChatMemory {
 
     public record SessionInfo(String id, String title, long timestamp) {}
 
+    // 同时用于 _sessions.json 的序列化
+    record SessionMeta(String title, long timestamp) {}
+
+    private static void checkSessionIds(Collection<String> conversationIds) {
+        if (conversationIds == null) {
+            throw new IllegalArgumentException("会话ID列表不能为空");
+        }
+        conversationIds.forEach(FileChatMemory::checkSessionId);
+    }
+
+    private static void checkSessionId(String conversationId) {
+        if (conversationId == null || !SESSION_ID.matcher(conversationId).matches()) {
+            throw new IllegalArgumentException("非法的会话ID: " + conversationId);
+        }
+    }
+
     private Path getFilePath(String conversationId) {
-        return chatDir.resolve(conversationId + ".json");
+        checkSessionId(conversationId);
+        Path file = chatDir.resolve(conversationId + ".json").normalize();
+        if (!file.startsWith(chatDir.normalize())) {
+            throw new IllegalArgumentException("非法的会话ID: " + conversationId);
+        }
+        return file;
     }
 
     private List<Message> loadFromFile(String conversationId) {
@@ -144,8 +520,13 @@ public class FileChatMemory implements ChatMemory {
         try {
             List<MessageData> dataList = objectMapper.readValue(file.toFile(), new TypeReference<>() {});
             List<Message> messages = new ArrayList<>();
+            if (dataList == null) {
+                return messages;
+            }
             for (MessageData data : dataList) {
-                messages.add(data.toMessage());
+                if (data != null) {
+                    messages.add(data.toMessage());
+                }
             }
             return messages;
         } catch (IOException e) {
@@ -169,12 +550,14 @@ public class FileChatMemory implements ChatMemory {
             return new MessageData(message.getMessageType().name(), message.getContent());
         }
 
+        // 缺失的类型按用户消息处理，缺失的内容按空字符串处理
         Message toMessage() {
-            return switch (type) {
-                case "USER" -> new UserMessage(content);
-                case "ASSISTANT" -> new AssistantMessage(content);
-                case "SYSTEM" -> new SystemMessage(content);
-                default -> new UserMessage(content);
+            String text = content != null ? content : "";
+            return switch (type != null ? type : "USER") {
+                case "USER" -> new UserMessage(text);
+                case "ASSISTANT" -> new AssistantMessage(text);
+                case "SYSTEM" -> new SystemMessage(text);
+                default -> new UserMessage(text);
             };
         }
     }
@@ -8,12 +8,19 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
 @CrossOrigin(origins = "*")
 public class ChatController {
 
+    // 搜索最多可翻到的结果条数
+    private static final int MAX_SEARCH_WINDOW = 10_000;
+    // 单次批量操作最多处理的会话数
+    private static final int MAX_BATCH_SIZE = 1_000;
+
     private final ChatService chatService;
 
     public ChatController(ChatService chatService) {
@@ -49,10 +56,19 @@ public class ChatController {
             .body(stream);
     }
 
-    // 获取历史消息
+    // 获取历史消息：默认返回最近 100 条；传入 from 时从会话第 from 条消息开始返回最多 limit 条，
+    // from 可取搜索结果中的 position，用于查看命中消息的上下文
     @GetMapping("/history/{sessionId}")
-    public List<MessageDto> getHistory(@PathVariable String sessionId) {
-        return chatService.getHistory(sessionId).stream()
+    public List<MessageDto> getHistory(@PathVariable String sessionId,
+                                       @RequestParam(required = false) Integer from,
+                                       @RequestParam(defaultValue = "100") int limit) {
+        if (from != null && (from < 0 || limit <= 0)) {
+            throw new IllegalArgumentException("from 不能小于 0，limit 必须大于 0");
+        }
+        List<Message> messages = from == null
+            ? chatService.getHistory(sessionId)
+            : chatService.getHistory(sessionId, from, Math.min(limit, 100));
+        return messages.stream()
             .map(m -> new MessageDto(m.getMessageType().name().toLowerCase(), m.getContent()))
             .toList();
     }
@@ -63,6 +79,67 @@ public class ChatController {
         return chatService.getAllSessions();
     }
 
+    // 批量获取多个会话的历史消息
+    @PostMapping("/sessions:batchGet")
+    public List<SessionHistoryDto> batchGetHistory(@RequestBody BatchSessionRequest request) {
+        requireSessionIds(request);
+        return chatService.getHistories(request.sessionIds()).entrySet().stream()
+            .map(e -> new SessionHistoryDto(e.getKey(), e.getValue().stream()
+                .map(m -> new MessageDto(m.getMessageType().name().toLowerCase(Locale.ROOT), m.getContent()))
+                .toList()))
+            .toList();
+    }
+
+    // 批量删除会话
+    @PostMapping("/sessions:batchDelete")
+    public void batchClearHistory(@RequestBody BatchSessionRequest request) {
+        requireSessionIds(request);
+        chatService.clearHistories(request.sessionIds());
+    }
+
+    // 批量修改会话标题
+    @PostMapping("/sessions:batchUpdateTitle")
+    public void batchUpdateSessionTitle(@RequestBody BatchTitleRequest request) {
+        if (request.titles() == null) {
+            throw new IllegalArgumentException("titles 不能为空");
+        }
+        requireBatchSize(request.titles().size());
+        chatService.updateSessionTitles(request.titles());
+    }
+
+    // 全文搜索历史消息
+    @GetMapping("/search")
+    public SearchPageDto search(@RequestParam String q,
+                                @RequestParam(defaultValue = "0") int page,
+                                @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size <= 0) {
+            throw new IllegalArgumentException("page 不能小于 0，size 必须大于 0");
+        }
+        size = Math.min(size, 100);
+        if ((long) page * size >= MAX_SEARCH_WINDOW) {
+            throw new IllegalArgumentException("最多只能查看前 " + MAX_SEARCH_WINDOW + " 条搜索结果");
+        }
+        return chatService.search(q, page, size);
+    }
+
+    private static void requireSessionIds(BatchSessionRequest request) {
+        if (request.sessionIds() == null) {
+            throw new IllegalArgumentException("sessionIds 不能为空");
+        }
+        requireBatchSize(request.sessionIds().size());
+    }
+
+    private static void requireBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("单次最多处理 " + MAX_BATCH_SIZE + " 个会话");
+        }
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
     // 清空会话
     @DeleteMapping("/history/{sessionId}")
     public void clearHistory(@PathVariable String sessionId) {
@@ -80,4 +157,10 @@ public class ChatController {
     public record MessageDto(String role, String content) {}
     public record SessionDto(String id, String title, long timestamp) {}
     public record TitleRequest(String title) {}
+    public record BatchSessionRequest(List<String> sessionIds) {}
+    public record BatchTitleRequest(Map<String, String> titles) {}
+    public record SessionHistoryDto(String sessionId, List<MessageDto> messages) {}
+    // position 是命中消息在整个会话中的下标，可作为 /history/{sessionId}?from= 的参数
+    public record SearchHitDto(String sessionId, int position, String role, double score, String snippet) {}
+    public record SearchPageDto(int total, int page, int size, List<SearchHitDto> hits) {}
 }
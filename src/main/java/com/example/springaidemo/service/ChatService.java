@@ -1,6 +1,8 @@
 package com.example.springaidemo.service;
 
 import com.example.springaidemo.config.FileChatMemory;
+import com.example.springaidemo.controller.ChatController.SearchHitDto;
+import com.example.springaidemo.controller.ChatController.SearchPageDto;
 import com.example.springaidemo.controller.ChatController.SessionDto;
 import com.example.springaidemo.tool.ExaSearchTool.ExaSearchRequest;
 import org.springframework.ai.chat.client.ChatClient;
@@ -13,7 +15,10 @@ import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.function.Function;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
@@ -25,16 +30,18 @@ public class ChatService {
     private final ChatClient chatClientWithoutMemory;  // 不带自动记忆的客户端
     private final ChatMemory chatMemory;
     private final Function<ExaSearchRequest, String> exaSearch;
+    private final PromptAssembler promptAssembler;
 
     public ChatService(ChatClient.Builder chatClientBuilder, ChatMemory chatMemory,
-                       Function<ExaSearchRequest, String> exaSearch) {
+                       Function<ExaSearchRequest, String> exaSearch, PromptAssembler promptAssembler) {
         this.chatMemory = chatMemory;
         this.exaSearch = exaSearch;
+        this.promptAssembler = promptAssembler;
         
         // 带自动记忆的客户端（普通聊天用）
         this.chatClient = chatClientBuilder
             .clone()  // 克隆一份，避免影响其他配置
-            .defaultSystem("请使用中文回答所有问题。")
+            .defaultSystem(PromptAssembler.DEFAULT_SYSTEM)
             .defaultAdvisors(
                 new MessageChatMemoryAdvisor(chatMemory),
                 new SimpleLoggerAdvisor()
@@ -44,7 +51,7 @@ public class ChatService {
         // 不带自动记忆的客户端（搜索场景手动管理记忆）
         this.chatClientWithoutMemory = chatClientBuilder
             .clone()  // 克隆一份
-            .defaultSystem("请使用中文回答所有问题。")
+            .defaultSystem(PromptAssembler.DEFAULT_SYSTEM)
             .build();
     }
 
@@ -60,25 +67,7 @@ public class ChatService {
             // 搜索结果用特殊标记包裹，前端可以识别并单独渲染
             String searchBlock = "<!--SEARCH_START-->" + searchResult + "<!--SEARCH_END-->\n\n";
             
-            String userMessageWithContext = """
-                你是一个知识渊博的助手。请基于以下搜索结果，用自然流畅的中文回答用户的问题。
-                
-                格式要求（非常重要）：
-                - 使用 Markdown 格式输出
-                - 段落之间必须空一行
-                - 如果有多个要点，使用列表格式，每个要点单独一行
-                - 不要把所有内容挤在一段里
-                
-                内容要求：
-                - 用自己的语言组织答案，不要复制原文
-                - 提炼关键信息，回答要有逻辑性
-                - 不要显示URL链接
-                
-                搜索结果（JSON格式）：
-                %s
-                
-                用户问题：%s
-                """.formatted(searchResult, message);
+            String userMessageWithContext = promptAssembler.searchAnswerPrompt(message, searchResult);
             
             // 手动保存用户原始消息
             chatMemory.add(sessionId, List.of(new UserMessage(message)));
@@ -118,10 +107,42 @@ public class ChatService {
         return chatMemory.get(sessionId, 100);
     }
 
+    // 按会话内的下标读取一段历史消息，用于定位搜索结果
+    public List<Message> getHistory(String sessionId, int from, int limit) {
+        if (chatMemory instanceof FileChatMemory fileChatMemory) {
+            return fileChatMemory.getRange(sessionId, from, limit);
+        }
+        List<Message> messages = chatMemory.get(sessionId, 0);
+        int start = Math.min(from, messages.size());
+        return messages.subList(start, (int) Math.min((long) start + limit, messages.size()));
+    }
+
+    public Map<String, List<Message>> getHistories(List<String> sessionIds) {
+        if (chatMemory instanceof FileChatMemory fileChatMemory) {
+            return fileChatMemory.getAll(sessionIds, 100);
+        }
+        Map<String, List<Message>> result = new LinkedHashMap<>();
+        for (String id : sessionIds) {
+            List<Message> messages = chatMemory.get(id, 100);
+            if (!messages.isEmpty()) {
+                result.put(id, messages);
+            }
+        }
+        return result;
+    }
+
     public void clearHistory(String sessionId) {
         chatMemory.clear(sessionId);
     }
 
+    public void clearHistories(List<String> sessionIds) {
+        if (chatMemory instanceof FileChatMemory fileChatMemory) {
+            fileChatMemory.clearAll(sessionIds);
+        } else {
+            sessionIds.forEach(chatMemory::clear);
+        }
+    }
+
     public List<SessionDto> getAllSessions() {
         if (chatMemory instanceof FileChatMemory fileChatMemory) {
             return fileChatMemory.getAllSessions().stream()
@@ -131,9 +152,25 @@ public class ChatService {
         return List.of();
     }
 
+    public SearchPageDto search(String query, int page, int size) {
+        if (chatMemory instanceof FileChatMemory fileChatMemory) {
+            var result = fileChatMemory.search(query, page, size);
+            return new SearchPageDto(result.total(), result.page(), result.size(), result.hits().stream()
+                .map(h -> new SearchHitDto(h.sessionId(), h.position(), h.role().toLowerCase(Locale.ROOT), h.score(), h.snippet()))
+                .toList());
+        }
+        return new SearchPageDto(0, page, size, List.of());
+    }
+
     public void updateSessionTitle(String sessionId, String title) {
         if (chatMemory instanceof FileChatMemory fileChatMemory) {
             fileChatMemory.updateTitle(sessionId, title);
         }
     }
+
+    public void updateSessionTitles(Map<String, String> titles) {
+        if (chatMemory instanceof FileChatMemory fileChatMemory) {
+            fileChatMemory.updateTitles(titles);
+        }
+    }
 }
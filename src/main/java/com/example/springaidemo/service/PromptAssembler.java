@@ -0,0 +1,106 @@
+package com.example.springaidemo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * 统一组装发送给模型的提示词。
+ * 固定不变的说明文字放在最前面，每次请求变化的内容（问题、搜索结果、日期）放在最后，
+ * 这样模型服务商的前缀缓存可以命中；固定部分只生成一次，按天变化的部分按天复用。
+ */
+@Component
+public class PromptAssembler {
+
+    public static final String DEFAULT_SYSTEM = "请使用中文回答所有问题。";
+
+    static final String SEARCH_ANSWER_PREFIX = """
+        你是一个知识渊博的助手。请基于下方的搜索结果，用自然流畅的中文回答用户的问题。
+
+        格式要求（非常重要）：
+        - 使用 Markdown 格式输出
+        - 段落之间必须空一行
+        - 如果有多个要点，使用列表格式，每个要点单独一行
+        - 不要把所有内容挤在一段里
+
+        内容要求：
+        - 用自己的语言组织答案，不要复制原文
+        - 提炼关键信息，回答要有逻辑性
+        - 不要显示URL链接
+
+        用户问题：""";
+
+    private static final String SEARCH_RESULT_HEADER = "\n\n搜索结果（JSON格式）：\n";
+
+    private static final String SEARCH_AGENT_SYSTEM = """
+        你是一个搜索助手。
+
+        请遵循以下规则：
+        1. 使用中文回答
+        2. 首先显示搜索摘要信息，使用 ```search-summary 代码块格式
+        3. 然后显示详细的搜索过程，使用 ```search-process 代码块格式
+        4. 搜索结果按分类组织：技术文档、新闻资讯、教程指南、问答社区、官方网站、其他资源
+        5. 每个分类下显示相关结果，包含标题、链接和摘要
+        6. 在回答中整合搜索到的信息，提供准确和有用的回答
+        7. 最后列出主要信息来源
+
+        搜索摘要格式示例：
+        ```search-summary
+        状态: 搜索中
+        查询: [用户查询]
+        结果数量: [数量]
+        分类: [分类列表]
+        ```
+
+        搜索过程格式示例：
+        ```search-process
+        🔍 联网搜索过程
+        ━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━
+        查询词: [查询词]
+        搜索时间: [时间]
+        结果总数: [数量]
+
+        📂 [分类名称] ([数量]条)
+        ─────────────────────────────────────────
+        1. [标题]
+           🔗 [链接]
+           📄 [摘要]
+        ```
+
+        当前日期是：""";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy年M月d日");
+
+    private volatile DatedPrompt searchAgentSystem = new DatedPrompt(LocalDate.MIN, "");
+
+    // 联网搜索场景的用户消息：固定说明 -> 用户问题 -> 搜索结果
+    public String searchAnswerPrompt(String question, String searchResult) {
+        question = Objects.toString(question, "");
+        searchResult = Objects.toString(searchResult, "");
+        return new StringBuilder(SEARCH_ANSWER_PREFIX.length() + SEARCH_RESULT_HEADER.length()
+                + question.length() + searchResult.length())
+            .append(SEARCH_ANSWER_PREFIX)
+            .append(question)
+            .append(SEARCH_RESULT_HEADER)
+            .append(searchResult)
+            .toString();
+    }
+
+    // 搜索助手的系统提示词，日期放在末尾，同一天内复用同一个字符串
+    public String searchAgentSystemPrompt() {
+        return searchAgentSystemPrompt(LocalDate.now());
+    }
+
+    String searchAgentSystemPrompt(LocalDate today) {
+        DatedPrompt cached = searchAgentSystem;
+        if (!cached.date().equals(today)) {
+            cached = new DatedPrompt(today, SEARCH_AGENT_SYSTEM + today.format(DATE_FORMAT));
+            searchAgentSystem = cached;
+        }
+        return cached.prompt();
+    }
+
+    private record DatedPrompt(LocalDate date, String prompt) {}
+}
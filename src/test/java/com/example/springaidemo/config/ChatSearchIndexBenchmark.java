@@ -0,0 +1,86 @@
+package com.example.springaidemo.config;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 全文索引的建索引耗时、查询延迟和堆占用，第一个参数为消息条数（默认 20 万）。
+ * 消息按一问一答生成：用户消息约 30 字，助手回复约 400 字；摘要需要的原文由种子重新生成，不计入索引占用。
+ * 建议用 -Xmx 限定堆大小运行，例如 -Xmx2g。
+ */
+public class ChatSearchIndexBenchmark {
+
+    private static final String CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处队南给色光门即保治北造百规热领七海口东导器压志世金增争济阶油思术极交受联什认六共权收证改清己美再采转更单风切打白教速花带安场身车例真务具万每目至达走积示议声报斗完类八离华名确才科张信马节话米整空元况今集温传土许步群广石记需段研界拉林律叫且究观越织装影算低持音众书布复容儿须际商非验连断深难近矿千周委素技备半办青省列习响约支般史感劳便团往酸历市克何除消构府称太准精值号率族维划选标写存候毛亲快效斯院查江型眼王按格养易置派层片始却专状育厂京识适属圆包火住调满县局照参红细引听该铁价严";
+    private static final int MESSAGES_PER_SESSION = 50;
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int sessions = (messages + MESSAGES_PER_SESSION - 1) / MESSAGES_PER_SESSION;
+
+        long heapBefore = usedHeap();
+        ChatSearchIndex index = new ChatSearchIndex(ChatSearchIndexBenchmark::loadSession);
+        long start = System.nanoTime();
+        long chars = 0;
+        for (int i = 0; i < messages; i++) {
+            int session = i / MESSAGES_PER_SESSION;
+            int position = i % MESSAGES_PER_SESSION;
+            String content = message(session, position);
+            chars += content.length();
+            index.add("session-" + session, position, position % 2 == 0 ? "USER" : "ASSISTANT", content);
+        }
+        System.out.printf("建索引: %d 条消息（平均 %d 字）, %.0f ms%n", messages, chars / messages, elapsed(start));
+        long heap = usedHeap() - heapBefore;
+        System.out.printf("索引堆占用: %.1f MB（消息原文约 %.1f MB）%n", heap / 1048576.0, chars * 2 / 1048576.0);
+
+        String[] queries = {"的", "的一", "中国人民", "发展经济", "最新版本"};
+        // 先预热几轮，避免 JIT 编译计入延迟
+        for (int round = 0; round < 10; round++) {
+            for (String q : queries) {
+                index.search(q, 0, 20);
+            }
+        }
+        for (String q : queries) {
+            start = System.nanoTime();
+            ChatSearchIndex.SearchPage page = index.search(q, 0, 20);
+            System.out.printf("查询 %-6s 命中 %7d 条, %.2f ms（含 %d 条摘要）%n", q, page.total(), elapsed(start), page.hits().size());
+        }
+
+        start = System.nanoTime();
+        for (int s = 0; s < sessions / 2; s++) {
+            index.remove("session-" + s);
+        }
+        System.out.printf("删除一半会话: %.0f ms%n", elapsed(start));
+        start = System.nanoTime();
+        ChatSearchIndex.SearchPage page = index.search("的一", 0, 20);
+        System.out.printf("删除后查询 的一 命中 %d 条, %.2f ms%n", page.total(), elapsed(start));
+    }
+
+    // 同一条消息每次生成的内容相同，用来模拟从会话文件读取原文
+    private static String message(int session, int position) {
+        Random random = new Random(session * 1000L + position);
+        int length = position % 2 == 0 ? 20 + random.nextInt(20) : 300 + random.nextInt(200);
+        StringBuilder sb = new StringBuilder(length);
+        for (int j = 0; j < length; j++) {
+            sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> loadSession(String sessionId) {
+        int session = Integer.parseInt(sessionId.substring("session-".length()));
+        return IntStream.range(0, MESSAGES_PER_SESSION).mapToObj(p -> message(session, p)).toList();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double elapsed(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.springaidemo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSearchIndexTest {
+
+    private final Map<String, List<String>> sessions = new HashMap<>();
+    private final ChatSearchIndex index = new ChatSearchIndex(sessions::get);
+
+    private void add(String sessionId, String content) {
+        List<String> messages = sessions.computeIfAbsent(sessionId, k -> new ArrayList<>());
+        index.add(sessionId, messages.size(), "USER", content);
+        messages.add(content);
+    }
+
+    @Test
+    void singleAndMultiCharacterCjkQueries() {
+        add("s1", "我的猫很可爱");
+        assertEquals(1, index.search("猫", 0, 10).total());
+        assertEquals(1, index.search("猫很", 0, 10).total());
+        assertEquals(0, index.search("猫狗", 0, 10).total());
+    }
+
+    @Test
+    void hugePageNumbersDoNotOverflow() {
+        add("s1", "我的猫很可爱");
+        assertTrue(index.search("猫很", 21474837, 100).hits().isEmpty());
+        assertTrue(index.search("猫很", Integer.MAX_VALUE, 1).hits().isEmpty());
+    }
+
+    @Test
+    void snippetIsLoadedForTheHitAndSurvivesCaseFolding() {
+        add("s1", "第一条消息");
+        add("s1", "İ".repeat(50) + " needle " + "x".repeat(40));
+        add("s2", "İstanbul");
+
+        ChatSearchIndex.SearchHit hit = index.search("needle", 0, 10).hits().get(0);
+        assertEquals(1, hit.position());
+        assertTrue(hit.snippet().contains("needle"));
+        assertEquals(1, index.search("istanbul", 0, 10).total());
+    }
+
+    @Test
+    void snippetIsEmptyWhenTheMessageIsGone() {
+        add("s1", "会被截断的消息");
+        sessions.get("s1").clear();
+        assertEquals("", index.search("截断", 0, 10).hits().get(0).snippet());
+    }
+
+    @Test
+    void searchBlockIsNotIndexed() {
+        add("s1", "回答正文<!--SEARCH_START-->{\"items\":[\"搜索结果\"]}<!--SEARCH_END-->");
+        assertEquals(1, index.search("回答", 0, 10).total());
+        assertEquals(0, index.search("搜索结果", 0, 10).total());
+        assertFalse(index.search("回答", 0, 10).hits().get(0).snippet().contains("SEARCH"));
+    }
+
+    @Test
+    void removeUpdatesDocumentFrequency() {
+        add("keep", "我的猫很可爱");
+        for (int i = 0; i < 100; i++) {
+            add("other-" + i, "其他消息 " + i);
+        }
+        Map<String, List<String>> expectedSessions = new HashMap<>(sessions);
+        ChatSearchIndex expected = new ChatSearchIndex(expectedSessions::get);
+        expectedSessions.forEach((id, messages) -> expected.add(id, 0, "USER", messages.get(0)));
+
+        for (int i = 0; i < 10; i++) {
+            add("tmp-" + i, "猫 " + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            index.remove("tmp-" + i);
+        }
+        // 删除后的打分应与从未写入这些消息时完全一致
+        assertEquals(expected.search("猫", 0, 10).hits().get(0).score(),
+            index.search("猫", 0, 10).hits().get(0).score());
+    }
+
+    @Test
+    void removeCompactsAfterManyDeletes() {
+        add("keep", "我的猫很可爱");
+        for (int i = 0; i < 3000; i++) {
+            add("tmp-" + i, "临时消息 " + i);
+        }
+        for (int i = 0; i < 3000; i++) {
+            index.remove("tmp-" + i);
+        }
+        assertEquals(0, index.search("临时", 0, 10).total());
+        assertEquals(1, index.search("猫", 0, 10).total());
+
+        index.remove("keep");
+        assertEquals(0, index.search("猫", 0, 10).total());
+    }
+}
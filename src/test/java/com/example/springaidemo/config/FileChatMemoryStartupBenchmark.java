@@ -0,0 +1,77 @@
+package com.example.springaidemo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 聊天记录存储在大量历史会话下的预热耗时，第一个参数为会话数量（默认 5 万）。
+ * 只统计 FileChatMemory 自身，不启动 Spring 容器，因此不反映 AOT/CDS 的效果。
+ */
+public class FileChatMemoryStartupBenchmark {
+
+    private static final int MESSAGES_PER_SESSION = 6;
+
+    public static void main(String[] args) throws IOException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Path dir = Files.createTempDirectory("chat-bench");
+        try {
+            generate(dir, sessions);
+            run("冷启动（没有 _sessions.json）", dir);
+            run("热启动（读取 _sessions.json）", dir);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static void run(String label, Path dir) {
+        System.out.println(label);
+        long start = System.nanoTime();
+        try (FileChatMemory memory = new FileChatMemory(dir.toString())) {
+            memory.warmUp();
+            System.out.printf("  构造并触发后台预热: %.1f ms%n", elapsed(start));
+
+            long write = System.nanoTime();
+            memory.add("session-0", List.of(new UserMessage("预热期间的新消息")));
+            System.out.printf("  首次写入: %.1f ms（距构造 %.1f ms）%n", elapsed(write), elapsed(start));
+
+            long list = System.nanoTime();
+            int count = memory.getAllSessions().size();
+            System.out.printf("  首次获取会话列表: %d 个会话, %.1f ms（距构造 %.1f ms）%n", count, elapsed(list), elapsed(start));
+
+            memory.warmUp().join();
+            System.out.printf("  全文索引重建完成: 距构造 %.1f ms%n", elapsed(start));
+        }
+    }
+
+    private static void generate(Path dir, int sessions) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            List<Map<String, String>> messages = new ArrayList<>(MESSAGES_PER_SESSION);
+            for (int j = 0; j < MESSAGES_PER_SESSION; j++) {
+                messages.add(Map.of(
+                    "type", j % 2 == 0 ? "USER" : "ASSISTANT",
+                    "content", "第 " + i + " 个会话的第 " + j + " 条消息，讨论 Spring AI 的使用方法和最佳实践"));
+            }
+            objectMapper.writeValue(dir.resolve("session-" + i + ".json").toFile(), messages);
+        }
+        System.out.printf("生成 %d 个会话文件: %.0f ms%n", sessions, elapsed(start));
+    }
+
+    private static double elapsed(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
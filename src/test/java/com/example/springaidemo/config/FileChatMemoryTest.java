@@ -0,0 +1,200 @@
+package com.example.springaidemo.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileChatMemoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void malformedSessionFilesDoNotBlockTheStore() throws IOException {
+        Files.writeString(dir.resolve("good.json"), "[{\"type\":\"USER\",\"content\":\"你好\"}]");
+        Files.writeString(dir.resolve("null-content.json"), "[{\"type\":\"USER\",\"content\":null}]");
+        Files.writeString(dir.resolve("no-type.json"), "[{\"content\":\"没有类型的消息\"}]");
+        Files.writeString(dir.resolve("broken.json"), "[{\"type\":");
+        Files.writeString(dir.resolve("null-file.json"), "null");
+
+        FileChatMemory memory = new FileChatMemory(dir.toString());
+        memory.warmUp().join();
+
+        assertEquals(5, memory.getAllSessions().size());
+        assertEquals("没有类型的消息", memory.get("no-type", 10).get(0).getContent());
+        assertEquals(1, memory.search("没有类型", 0, 10).total());
+
+        memory.add("good", List.of(new UserMessage("再见")));
+        memory.updateTitle("broken", "损坏的会话");
+        memory.clear("null-content");
+        assertEquals(4, memory.getAllSessions().size());
+    }
+
+    @Test
+    void writesBeforeWarmUpCompletesAreIndexedOnce() throws IOException {
+        Files.writeString(dir.resolve("a.json"), "[{\"type\":\"USER\",\"content\":\"旧的消息\"}]");
+
+        try (FileChatMemory memory = new FileChatMemory(dir.toString())) {
+            memory.add("a", List.of(new UserMessage("预热期间的消息")));
+            memory.add("b", List.of(new UserMessage("预热期间的消息")));
+            memory.warmUp().join();
+
+            assertEquals(2, memory.search("预热期间", 0, 10).total());
+            assertEquals(1, memory.search("旧的消息", 0, 10).total());
+
+            memory.add("a", List.of(new UserMessage("就绪之后的消息")));
+            assertEquals(1, memory.search("就绪之后", 0, 10).total());
+        }
+    }
+
+    @Test
+    void sessionListIsPersistedAndReusedOnRestart() throws IOException {
+        try (FileChatMemory memory = new FileChatMemory(dir.toString())) {
+            memory.add("a", List.of(new UserMessage("原来的问题")));
+            memory.add("b", List.of(new UserMessage("会被删除的会话")));
+            // 会话列表加载完成后才会写出 _sessions.json
+            memory.warmUp().join();
+        }
+        assertTrue(Files.exists(dir.resolve("_sessions.json")));
+
+        // 重启时会话列表取自 _sessions.json，而不是重新解析会话文件
+        Files.writeString(dir.resolve("a.json"), "[{\"type\":\"USER\",\"content\":\"改写后的问题\"}]");
+        Files.delete(dir.resolve("b.json"));
+        Files.writeString(dir.resolve("c.json"), "[{\"type\":\"USER\",\"content\":\"新出现的会话\"}]");
+
+        try (FileChatMemory memory = new FileChatMemory(dir.toString())) {
+            List<FileChatMemory.SessionInfo> sessions = memory.getAllSessions();
+            assertEquals(2, sessions.size());
+            assertEquals("原来的问题", titleOf(sessions, "a"));
+            assertEquals("新出现的会话", titleOf(sessions, "c"));
+        }
+    }
+
+    private static String titleOf(List<FileChatMemory.SessionInfo> sessions, String id) {
+        return sessions.stream().filter(s -> s.id().equals(id)).findFirst().orElseThrow().title();
+    }
+
+    @Test
+    void historyRangeMatchesSearchPositions() {
+        try (FileChatMemory memory = new FileChatMemory(dir.toString())) {
+            for (int i = 0; i < 150; i++) {
+                memory.add("a", List.of(new UserMessage("第" + i + "条" + (i == 7 ? " needle" : ""))));
+            }
+            memory.warmUp().join();
+
+            ChatSearchIndex.SearchHit hit = memory.search("needle", 0, 10).hits().get(0);
+            assertEquals(7, hit.position());
+            assertTrue(hit.snippet().contains("needle"));
+            assertEquals("第7条 needle", memory.getRange("a", hit.position(), 1).get(0).getContent());
+            assertEquals(5, memory.getRange("a", 145, 100).size());
+            assertTrue(memory.getRange("a", 500, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void startupRebuildCanBeDisabled() throws IOException {
+        Files.writeString(dir.resolve("a.json"), "[{\"type\":\"USER\",\"content\":\"历史消息\"}]");
+
+        try (FileChatMemory memory = new FileChatMemory(dir.toString(), false)) {
+            memory.add("a", List.of(new UserMessage("新的消息")));
+            memory.warmUp().join();
+
+            assertEquals(1, memory.getAllSessions().size());
+            assertEquals(0, memory.search("历史", 0, 10).total());
+            ChatSearchIndex.SearchHit hit = memory.search("新的", 0, 10).hits().get(0);
+            assertEquals(1, hit.position());
+
+            memory.clear("a");
+            assertEquals(0, memory.search("新的", 0, 10).total());
+        }
+    }
+
+    @Test
+    void clearAllRewritesTitlesOnce() {
+        CountingMemory memory = new CountingMemory(dir);
+        for (String id : List.of("a", "b", "c")) {
+            memory.add(id, List.of(new UserMessage("消息 " + id)));
+        }
+        memory.updateTitles(Map.of("a", "标题 a", "b", "标题 b", "c", "标题 c"));
+        assertEquals(1, memory.titleWrites);
+
+        memory.clearAll(List.of("a", "b", "c"));
+        assertEquals(2, memory.titleWrites);
+        assertTrue(memory.getAllSessions().isEmpty());
+        assertFalse(Files.exists(dir.resolve("a.json")));
+        assertNull(memory.getTitle("b"));
+    }
+
+    @Test
+    void clearAllValidatesEveryIdBeforeDeleting() {
+        FileChatMemory memory = new FileChatMemory(dir.toString());
+        memory.add("a", List.of(new UserMessage("保留的会话")));
+        memory.updateTitle("a", "标题");
+
+        assertThrows(IllegalArgumentException.class, () -> memory.clearAll(List.of("a", "../x")));
+        assertThrows(IllegalArgumentException.class, () -> memory.clearAll(List.of("_titles")));
+        assertThrows(IllegalArgumentException.class, () -> memory.clearAll(null));
+
+        assertTrue(Files.exists(dir.resolve("a.json")));
+        assertTrue(Files.exists(dir.resolve("_titles.json")));
+        assertEquals(1, memory.getAllSessions().size());
+        assertEquals("标题", memory.getTitle("a"));
+    }
+
+    @Test
+    void updateTitlesIsAllOrNothing() {
+        CountingMemory memory = new CountingMemory(dir);
+        Map<String, String> titles = new HashMap<>();
+        titles.put("a", "有效标题");
+        titles.put("b", null);
+
+        assertThrows(IllegalArgumentException.class, () -> memory.updateTitles(titles));
+        assertThrows(IllegalArgumentException.class, () -> memory.updateTitles(Map.of("../x", "标题")));
+        assertEquals(0, memory.titleWrites);
+        assertNull(memory.getTitle("a"));
+
+        memory.updateTitles(Map.of());
+        assertEquals(0, memory.titleWrites);
+    }
+
+    @Test
+    void getAllSkipsMissingSessionsAndReadsFilesWithoutCaching() throws IOException {
+        Files.writeString(dir.resolve("a.json"), "[{\"type\":\"USER\",\"content\":\"第一条\"},{\"type\":\"ASSISTANT\",\"content\":\"第二条\"}]");
+        FileChatMemory memory = new FileChatMemory(dir.toString());
+        memory.get("missing", 10);
+
+        Map<String, List<Message>> result = memory.getAll(List.of("a", "missing", "none"), 1);
+        assertEquals(List.of("a"), List.copyOf(result.keySet()));
+        assertEquals("第二条", result.get("a").get(0).getContent());
+
+        // 未进入缓存，文件变化后再次读取能看到新内容
+        Files.writeString(dir.resolve("a.json"), "[{\"type\":\"USER\",\"content\":\"改写后\"}]");
+        assertEquals("改写后", memory.getAll(List.of("a"), 10).get("a").get(0).getContent());
+
+        assertThrows(IllegalArgumentException.class, () -> memory.getAll(List.of("a", "../x"), 10));
+    }
+
+    private static class CountingMemory extends FileChatMemory {
+        int titleWrites;
+
+        CountingMemory(Path dir) {
+            super(dir.toString());
+        }
+
+        @Override
+        void saveTitles() {
+            titleWrites++;
+            super.saveTitles();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.springaidemo.service;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 对比联网搜索提示词改用 {@link PromptAssembler} 前后，每次组装在当前线程上分配的字节数。
+ */
+public class PromptAssemblerBenchmark {
+
+    private static final int ITERATIONS = 200_000;
+
+    // 改造前 ChatService 中的写法，作为对照
+    private static final String LEGACY_TEMPLATE = """
+        你是一个知识渊博的助手。请基于以下搜索结果，用自然流畅的中文回答用户的问题。
+
+        格式要求（非常重要）：
+        - 使用 Markdown 格式输出
+        - 段落之间必须空一行
+        - 如果有多个要点，使用列表格式，每个要点单独一行
+        - 不要把所有内容挤在一段里
+
+        内容要求：
+        - 用自己的语言组织答案，不要复制原文
+        - 提炼关键信息，回答要有逻辑性
+        - 不要显示URL链接
+
+        搜索结果（JSON格式）：
+        %s
+
+        用户问题：%s
+        """;
+
+    public static void main(String[] args) {
+        PromptAssembler assembler = new PromptAssembler();
+        String searchResult = "{\"type\":\"search\",\"items\":[" + "{\"title\":\"Spring Boot 3.4 发布\",\"snippet\":\"...\"},".repeat(40) + "]}";
+
+        long legacy = allocatedPerCall(() -> LEGACY_TEMPLATE.formatted(searchResult, "Spring Boot 最新版本是多少？"));
+        long assembled = allocatedPerCall(() -> assembler.searchAnswerPrompt("Spring Boot 最新版本是多少？", searchResult));
+        System.out.printf("联网搜索提示词: 改造前 %d 字节/次, 改造后 %d 字节/次%n", legacy, assembled);
+
+        long system = allocatedPerCall(assembler::searchAgentSystemPrompt);
+        System.out.printf("搜索助手系统提示词: %d 字节/次%n", system);
+        System.out.printf("联网搜索提示词固定前缀: %d 字符%n", PromptAssembler.SEARCH_ANSWER_PREFIX.length());
+    }
+
+    private static long allocatedPerCall(Runnable call) {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.springaidemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptAssemblerTest {
+
+    private final PromptAssembler assembler = new PromptAssembler();
+
+    @Test
+    void searchAnswerPromptStartsWithTheFixedPrefix() {
+        String a = assembler.searchAnswerPrompt("问题一", "{\"items\":[]}");
+        String b = assembler.searchAnswerPrompt("另一个完全不同的问题", "{}");
+
+        assertTrue(a.startsWith(PromptAssembler.SEARCH_ANSWER_PREFIX + "问题一"));
+        assertTrue(b.startsWith(PromptAssembler.SEARCH_ANSWER_PREFIX + "另一个完全不同的问题"));
+        assertTrue(a.endsWith("{\"items\":[]}"));
+    }
+
+    @Test
+    void nullInputsAreTreatedAsEmpty() {
+        assertEquals(assembler.searchAnswerPrompt("", ""), assembler.searchAnswerPrompt(null, null));
+    }
+
+    @Test
+    void systemPromptIsReusedWithinADay() {
+        LocalDate today = LocalDate.of(2026, 1, 1);
+        assertSame(assembler.searchAgentSystemPrompt(today), assembler.searchAgentSystemPrompt(today));
+        assertTrue(assembler.searchAgentSystemPrompt(today).endsWith("2026年1月1日"));
+    }
+
+    @Test
+    void systemPromptOnlyDiffersInTheTrailingDate() {
+        String day1 = assembler.searchAgentSystemPrompt(LocalDate.of(2026, 1, 1));
+        String day2 = assembler.searchAgentSystemPrompt(LocalDate.of(2026, 1, 2));
+
+        assertNotEquals(day1, day2);
+        assertEquals(day1.substring(0, day1.length() - "1日".length()),
+            day2.substring(0, day2.length() - "2日".length()));
+    }
+}